@@ -0,0 +1,67 @@
+#!/bin/sh
+#
+# Measures tail4j time-to-first-byte: the time from launching the program
+# until the first byte of an existing file shows up on its stdout.
+#
+# usage: bench/startup-ttfb.sh [launcher] [runs]
+#   launcher : tail4j (default) or tail4j-cds (needs `mvn package -Pcds`)
+#   runs     : number of measured runs (default = 10)
+#
+# Build first:
+#   $ mvn package -DskipTests          # or: mvn package -DskipTests -Pcds
+#   $ bench/startup-ttfb.sh tail4j-cds 20
+
+LAUNCHER=${1:-tail4j}
+RUNS=${2:-10}
+BASEDIR=`cd "\`dirname "$0"\`/.." && pwd`
+BIN="$BASEDIR/target/appassembler/bin/$LAUNCHER"
+
+if [ ! -f "$BIN" ]; then
+  echo "$BIN not found. run 'mvn package' first." 1>&2
+  exit 1
+fi
+
+# milliseconds need GNU date (%N is not supported by BSD/macOS date).
+case `date +%N` in
+  *[!0-9]*|'')
+    echo "GNU date is required (date +%N). On BSD/macOS, install coreutils and put gdate first in PATH as date." 1>&2
+    exit 1
+    ;;
+esac
+
+WORK=`mktemp -d "${TMPDIR:-/tmp}/tail4j-bench.XXXXXX"`
+trap 'rm -rf "$WORK"' EXIT
+echo "tail4j startup benchmark" > "$WORK/source.log"
+mkfifo "$WORK/out"
+
+now_ms() {
+  echo $((`date +%s%N` / 1000000))
+}
+
+run_once() {
+  start=`now_ms`
+  sh "$BIN" "$WORK/source.log" > "$WORK/out" &
+  pid=$!
+  head -c 1 "$WORK/out" > /dev/null
+  end=`now_ms`
+  kill $pid 2>/dev/null
+  wait $pid 2>/dev/null
+  echo $((end - start))
+}
+
+# warm up the OS page cache
+run_once > /dev/null
+
+total=0
+min=
+max=0
+i=0
+while [ $i -lt $RUNS ]; do
+  t=`run_once`
+  total=$((total + t))
+  [ -z "$min" ] || [ $t -lt $min ] && min=$t
+  [ $t -gt $max ] && max=$t
+  i=$((i + 1))
+done
+
+echo "launcher=$LAUNCHER runs=$RUNS avg=$((total / RUNS))ms min=${min}ms max=${max}ms"
@@ -0,0 +1,38 @@
+#!/bin/sh
+#
+# Dumps the class data sharing archive used by the tail4j-cds launcher.
+# The archive is trained on a real, bounded tailing run, so that the classes
+# used to tail a file (not only to parse the options) are archived.
+#
+# usage: dump-cds-archive.sh appassembler-dir archive-file
+# Called by the cds profile in pom.xml. Requires JDK 13 or higher.
+
+APP_DIR=$1
+ARCHIVE=$2
+
+WORK=`mktemp -d "${TMPDIR:-/tmp}/tail4j-cds.XXXXXX"`
+trap 'rm -rf "$WORK"' EXIT
+echo "tail4j cds training" > "$WORK/source.log"
+rm -f "$ARCHIVE"
+
+JAVA_OPTS="-Xlog:cds=off -Xlog:cds+dynamic=off -XX:ArchiveClassesAtExit=$ARCHIVE" \
+  sh "$APP_DIR/bin/tail4j" "$WORK/source.log" > "$WORK/out" 2>&1 &
+pid=$!
+
+# wait for the initial read, then append once to go through the watch service.
+i=0
+while [ ! -s "$WORK/out" ] && [ $i -lt 20 ]; do
+  sleep 1
+  i=$((i + 1))
+done
+echo "tail4j cds training" >> "$WORK/source.log"
+sleep 1
+# the archive is dumped when the JVM exits on SIGTERM.
+kill $pid
+wait $pid
+
+if [ ! -s "$ARCHIVE" ]; then
+  echo "failed to dump $ARCHIVE" 1>&2
+  cat "$WORK/out" 1>&2
+  exit 1
+fi
@@ -0,0 +1,253 @@
+package tail4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An OutputStream shared by several TailFile threads.
+ * <p>
+ * Each writing thread keeps its own pending (not yet terminated) line, and only complete lines are
+ * handed to a lock-free queue. A single writer thread drains the queue and writes the lines in
+ * batches with gathering writes, so lines from different threads never interleave and a writer
+ * does not block the others on a shared monitor.
+ * <p>
+ * A pending line is emitted when it is completed, when it grows beyond {@link #MAX_RECORD_SIZE}
+ * or when the owning thread calls {@link #flush()}. Only the last two split a line into several
+ * records, which other threads' lines can come between. TailFile flushes only when its thread ends,
+ * so an unterminated line is held until it is completed or the file is no longer tailed.
+ */
+public class OutputMultiplexer extends OutputStream {
+    public static final int MAX_RECORD_SIZE = 1024 * 1024;
+    public static final int DEFAULT_MAX_BATCH = 64;
+    public static final long DEFAULT_MAX_PENDING_BYTES = 8L * 1024 * 1024;
+    private final GatheringByteChannel channel;
+    private final int maxBatch;
+    private final long maxPendingBytes;
+    private final ConcurrentLinkedQueue<ByteBuffer> records = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    // set by close() once no enqueue is in progress; the writer exits when the queue is empty.
+    private final AtomicBoolean stopping = new AtomicBoolean(false);
+    private final AtomicInteger enqueueing = new AtomicInteger();
+    private final AtomicReference<IOException> writerError = new AtomicReference<>();
+    private final ThreadLocal<LineBuffer> lineBuffer = new ThreadLocal<LineBuffer>() {
+        @Override
+        protected LineBuffer initialValue() {
+            return new LineBuffer();
+        }
+    };
+    private final Writer writer;
+
+    public OutputMultiplexer(GatheringByteChannel channel, int maxBatch, long maxPendingBytes) {
+        if (channel == null) {
+            throw new IllegalArgumentException("channel must not be null.");
+        }
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException(String.format("maxBatch[%d] must be positive.", maxBatch));
+        }
+        if (maxPendingBytes < 1L) {
+            throw new IllegalArgumentException(
+                    String.format("maxPendingBytes[%d] must be positive.", maxPendingBytes));
+        }
+        this.channel = channel;
+        this.maxBatch = maxBatch;
+        this.maxPendingBytes = maxPendingBytes;
+        this.writer = new Writer();
+        this.writer.start();
+    }
+    public OutputMultiplexer(GatheringByteChannel channel) {
+        this(channel, DEFAULT_MAX_BATCH, DEFAULT_MAX_PENDING_BYTES);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureOpen();
+        LineBuffer lb = lineBuffer.get();
+        int last = off + len - 1;
+        while (last >= off && b[last] != '\n') {
+            last--;
+        }
+        if (last < off) {
+            lb.append(b, off, len);
+            if (lb.size() >= MAX_RECORD_SIZE) {
+                enqueue(lb.drain(null, 0, 0));
+            }
+            return;
+        }
+        int head = last + 1 - off;
+        enqueue(lb.drain(b, off, head));
+        lb.append(b, last + 1, len - head);
+    }
+
+    /**
+     * Emits the pending line of the calling thread, even if it is not terminated yet.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        LineBuffer lb = lineBuffer.get();
+        if (lb.size() > 0) {
+            enqueue(lb.drain(null, 0, 0));
+        }
+    }
+
+    /**
+     * Flushes the calling thread, writes every queued line and closes the underlying channel.
+     * Writes from other threads after this is called fail with an IOException.
+     * It is safe to call this more than once, also concurrently.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed.get()) {
+            try {
+                flush();
+            } catch (IOException e) {
+                // closed concurrently, or the writer has failed and it is thrown below.
+            }
+        }
+        closed.set(true);
+        // records offered before closed was seen are still written.
+        while (enqueueing.get() > 0) {
+            LockSupport.parkNanos(100000L);
+        }
+        stopping.set(true);
+        LockSupport.unpark(writer);
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        IOException e;
+        if ((e = writerError.get()) != null) {
+            throw e;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        ensureWriterAlive();
+        if (closed.get()) {
+            throw new IOException("output is already closed.");
+        }
+    }
+
+    private void ensureWriterAlive() throws IOException {
+        IOException e;
+        if ((e = writerError.get()) != null) {
+            throw new IOException("output writer has failed.", e);
+        }
+    }
+
+    private void enqueue(byte[] record) throws IOException {
+        enqueueing.incrementAndGet();
+        try {
+            ensureOpen();
+            // keep memory bounded when the channel is slower than the sources.
+            while (pendingBytes.get() > maxPendingBytes) {
+                LockSupport.parkNanos(100000L);
+                ensureWriterAlive();
+            }
+            pendingBytes.addAndGet(record.length);
+            records.offer(ByteBuffer.wrap(record));
+        } finally {
+            enqueueing.decrementAndGet();
+        }
+        LockSupport.unpark(writer);
+    }
+
+    static class LineBuffer {
+        private byte[] buf = new byte[0];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void append(byte[] b, int off, int len) {
+            if (size + len > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(size + len, buf.length * 2));
+            }
+            System.arraycopy(b, off, buf, size, len);
+            size += len;
+        }
+
+        byte[] drain(byte[] b, int off, int len) {
+            byte[] record = Arrays.copyOf(buf, size + len);
+            if (len > 0) {
+                System.arraycopy(b, off, record, size, len);
+            }
+            size = 0;
+            if (buf.length > MAX_RECORD_SIZE) {
+                buf = new byte[0];
+            }
+            return record;
+        }
+    }
+
+    class Writer extends Thread {
+        Writer() {
+            super("tail4j-output");
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer[] batch = new ByteBuffer[maxBatch];
+            try {
+                while (true) {
+                    int n = 0;
+                    ByteBuffer record;
+                    while (n < batch.length && (record = records.poll()) != null) {
+                        batch[n++] = record;
+                    }
+                    if (n == 0) {
+                        if (stopping.get() && records.isEmpty()) {
+                            break;
+                        }
+                        LockSupport.park(this);
+                        continue;
+                    }
+                    pendingBytes.addAndGet(-writeFully(batch, n));
+                    Arrays.fill(batch, 0, n, null);
+                }
+            } catch (IOException e) {
+                writerError.set(e);
+                closed.set(true);
+            }
+        }
+
+        private long writeFully(ByteBuffer[] batch, int n) throws IOException {
+            long written = 0L;
+            int offset = 0;
+            while (offset < n) {
+                written += channel.write(batch, offset, n - offset);
+                while (offset < n && !batch[offset].hasRemaining()) {
+                    offset++;
+                }
+            }
+            return written;
+        }
+    }
+}
@@ -3,11 +3,15 @@ package tail4j;
 import org.kohsuke.args4j.*;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public class Tail {
 
@@ -34,21 +38,46 @@ public class Tail {
         System.err.println("  Example: tail4j" + parser.printExample(OptionHandlerFilter.ALL));
     }
 
-    public void doMain(String... args) throws InterruptedException {
+    public void doMain(String... args) throws IOException, InterruptedException {
         if (!init(args)) {
             return;
         }
-        TailFile.Builder builder = createBuilder();
-        WatchDir wd = new WatchDir(builder);
-        wd.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
-            @Override
-            public void uncaughtException(Thread t, Throwable e) {
-                e.printStackTrace();
-                System.exit(-1);
+        try (OutputMultiplexer out = new OutputMultiplexer(new FileOutputStream(FileDescriptor.out).getChannel())) {
+            TailFile.Builder builder = createBuilder(out);
+            WatchDir wd = new WatchDir(builder);
+            wd.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                @Override
+                public void uncaughtException(Thread t, Throwable e) {
+                    e.printStackTrace();
+                    System.exit(-1);
+                }
+            });
+            addShutdownHook(wd, out);
+            wd.start();
+            wd.join();
+        }
+    }
+
+    /**
+     * On SIGINT/SIGTERM, stops tailing and writes the output that is still queued.
+     */
+    private void addShutdownHook(final WatchDir wd, final OutputMultiplexer out) {
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                wd.shutdown();
+                try {
+                    // bounded, because System.exit() may be called from the WatchDir thread itself.
+                    wd.join(TimeUnit.SECONDS.toMillis(WatchDir.DEFAULT_ROTATE_WAIT));
+                } catch (InterruptedException e) {
+                    interrupt();
+                }
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
             }
         });
-        wd.start();
-        wd.join();
     }
 
     private boolean init(String... args) {
@@ -72,8 +101,8 @@ public class Tail {
         return true;
     }
 
-    private TailFile.Builder createBuilder() {
-        TailFile.Builder builder = new TailFile.Builder(Paths.get(arguments.get(0)), System.out);
+    private TailFile.Builder createBuilder(OutputStream out) {
+        TailFile.Builder builder = new TailFile.Builder(Paths.get(arguments.get(0)), out);
         if (reset) {
             builder = builder.reset(true);
         }
@@ -29,6 +29,14 @@ public class TailFile implements Runnable {
     private final AtomicReference<ReadingPos> readingPos;
     private final AtomicBoolean shutdown = new AtomicBoolean(false);
     private final Semaphore semaphore = new Semaphore(1);
+    // only accessed by the tailing thread.
+    private final Fingerprint fingerprint = new Fingerprint();
+    private final Fingerprint headPrint = new Fingerprint();
+    // updated while reading, and committed with the position at the end of a pass.
+    private final Fingerprint nextPrint = new Fingerprint();
+    private final Fingerprint nextHeadPrint = new Fingerprint();
+    private final ByteBuffer headBuffer = ByteBuffer.allocate(Fingerprint.SIZE);
+    private long position;
 
     TailFile(SourceHolder sourceHolder, Charset sourceCharset, OutputStream out, Charset destCharset,
              ReadingPos readingPos) {
@@ -76,9 +84,9 @@ public class TailFile implements Runnable {
     public void run() {
         try (FileChannel sc = (FileChannel) Files.newByteChannel(sourceHolder.getSource(), EnumSet.of(READ))) {
             readingPos.get().open();
-            sc.position(readingPos.get().currentPos(sc));
             ByteBuffer readBuffer = ByteBuffer.allocate(1024 * 1024);
             CharBuffer readCharBuffer = CharBuffer.allocate(1024 * 1024);
+            initPosition(sc, readBuffer, readingPos.get().currentPos(sc));
             while (!shutdown.get() && !Thread.currentThread().isInterrupted()) {
                 try {
                     semaphore.acquire();
@@ -86,12 +94,17 @@ public class TailFile implements Runnable {
                     Thread.currentThread().interrupt();
                     break;
                 }
-                resetPosIfTruncated(sc);
                 tail(sc, readBuffer, readCharBuffer);
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
         } finally {
+            try {
+                // emit a trailing line that has not been terminated yet.
+                out.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
             try {
                 readingPos.get().close();
             } catch (IOException e) {
@@ -100,39 +113,120 @@ public class TailFile implements Runnable {
         }
     }
 
-    private void resetPosIfTruncated(FileChannel tc) {
-        try {
-            if (tc.size() < readingPos.get().currentPos(tc)) {
-                tc.position(tc.size());
-                readingPos.get().currentPos(tc.size());
+    /**
+     * Starts from the given position if the head of the file and the bytes before the position
+     * still match the stored fingerprints. Otherwise (the file is shorter than the position, or it
+     * was truncated and has grown past it while not being tailed) the file is read from the head.
+     */
+    private void initPosition(FileChannel sc, ByteBuffer readBuffer, long pos) throws IOException {
+        position = 0L;
+        fingerprint.clear();
+        headPrint.clear();
+        if (pos > 0L) {
+            int len = (int) Math.min(Fingerprint.SIZE, pos);
+            Fingerprint stored = new Fingerprint();
+            Fingerprint storedHead = new Fingerprint();
+            // a position file written by an older version has no fingerprint.
+            boolean known = readingPos.get().fingerprint(stored, storedHead);
+            if (readPrint(sc, readBuffer, pos - len, len) >= len && readPrint(sc, headBuffer, 0L, len) >= len
+                    && (!known || (stored.length() == len && stored.matches(readBuffer)
+                    && storedHead.length() == len && storedHead.matches(headBuffer)))) {
+                fingerprint.update(readBuffer, 0, len);
+                headPrint.update(headBuffer, 0, len);
+                position = pos;
             }
-        } catch (IOException e) {
-            // TODO
-            e.printStackTrace();
         }
+        readingPos.get().currentPos(position, fingerprint, headPrint);
     }
 
+    private int readPrint(FileChannel sc, ByteBuffer readBuffer, long from, int len) throws IOException {
+        readBuffer.clear();
+        long readPos = from;
+        int n;
+        while (readBuffer.position() < len && (n = sc.read(readBuffer, readPos)) > 0) {
+            readPos += n;
+        }
+        return readBuffer.position();
+    }
+
+    /**
+     * The fingerprints of the bytes read during a pass. {@code fileOffset} is the offset of {@code from}.
+     */
+    private void updatePrints(ByteBuffer bb, int from, int to, long fileOffset) {
+        nextPrint.update(bb, from, to);
+        if (fileOffset < Fingerprint.SIZE) {
+            nextHeadPrint.update(bb, from, from + (int) Math.min(to - from, Fingerprint.SIZE - fileOffset));
+        }
+    }
+
+    /**
+     * Reads from the bytes before the current position so that a truncated or replaced file
+     * (e.g. copytruncate, then written past the old position) is found by the same read that
+     * fetches the appended bytes. In that case the file is read again from the head.
+     * <p>
+     * The bytes before the position can be the same in the new file (e.g. lines of a fixed width
+     * ending with the same bytes), so the head of the file is compared as well when it has grown.
+     */
     private void tail(FileChannel sc, ByteBuffer readBuffer,
                       CharBuffer readCharBuffer) throws IOException {
-        readBuffer.clear();
         CharsetDecoder cd = sourceCharset.newDecoder();
         cd.onMalformedInput(CodingErrorAction.REPLACE);
         cd.onUnmappableCharacter(CodingErrorAction.REPLACE);
         try {
-            while (sc.read(readBuffer) != -1) {
+            nextPrint.copyFrom(fingerprint);
+            nextHeadPrint.copyFrom(headPrint);
+            int printLen = fingerprint.length();
+            long readPos = position - printLen;
+            int read = readPrint(sc, readBuffer, readPos, printLen);
+            boolean truncated = read < printLen || !fingerprint.matches(readBuffer);
+            if (!truncated && read > printLen && position > Fingerprint.SIZE) {
+                truncated = readPrint(sc, headBuffer, 0L, Fingerprint.SIZE) < Fingerprint.SIZE
+                        || !headPrint.matches(headBuffer);
+            }
+            if (truncated) {
+                nextPrint.clear();
+                nextHeadPrint.clear();
+                readBuffer.clear();
+                readPos = 0L;
+            } else {
+                updatePrints(readBuffer, printLen, read, position);
+                readBuffer.flip();
+                readBuffer.position(printLen);
+                readBuffer.compact();
+                readPos += read;
+            }
+            int n;
+            do {
                 readBuffer.flip();
                 cd.decode(readBuffer, readCharBuffer, false);
                 readCharBuffer.flip();
-                out.write(String.valueOf(readCharBuffer).getBytes(destCharset));
+                if (readCharBuffer.hasRemaining()) {
+                    out.write(String.valueOf(readCharBuffer).getBytes(destCharset));
+                }
                 readBuffer.compact();
                 readCharBuffer.clear();
-            }
+                int from = readBuffer.position();
+                if ((n = sc.read(readBuffer, readPos)) > 0) {
+                    updatePrints(readBuffer, from, readBuffer.position(), readPos);
+                    readPos += n;
+                }
+            } while (n > 0);
             readBuffer.flip();
             cd.decode(readBuffer, readCharBuffer, true);
             cd.flush(readCharBuffer);
             readCharBuffer.flip();
-            out.write(String.valueOf(readCharBuffer).getBytes(destCharset));
-            readingPos.get().currentPos(sc.position());
+            if (readCharBuffer.hasRemaining()) {
+                out.write(String.valueOf(readCharBuffer).getBytes(destCharset));
+            }
+            readCharBuffer.clear();
+            if (truncated || readPos != position) {
+                // commit only after the whole pass has been written, so that a failed pass is read again
+                // from the same position.
+                position = readPos;
+                fingerprint.copyFrom(nextPrint);
+                headPrint.copyFrom(nextHeadPrint);
+                readingPos.get().currentPos(position, fingerprint, headPrint);
+            }
         } catch (IOException e) {
             // TODO handle
             e.printStackTrace();
@@ -251,6 +345,75 @@ public class TailFile implements Runnable {
         }
     }
 
+    /**
+     * Up to {@link #SIZE} bytes of the file: the last bytes before the reading position,
+     * or the first bytes of the file (the head).
+     */
+    static class Fingerprint {
+        static final int SIZE = 64;
+        private final byte[] bytes = new byte[SIZE];
+        private int length;
+
+        int length() {
+            return length;
+        }
+
+        void clear() {
+            length = 0;
+        }
+
+        /**
+         * Appends the bytes between {@code from} and {@code to} of the buffer, keeping the last SIZE bytes.
+         */
+        void update(ByteBuffer bb, int from, int to) {
+            int n = to - from;
+            if (n <= 0) {
+                return;
+            }
+            int keep = Math.min(length, SIZE - Math.min(n, SIZE));
+            System.arraycopy(bytes, length - keep, bytes, 0, keep);
+            for (int i = Math.max(from, to - SIZE); i < to; i++) {
+                bytes[keep++] = bb.get(i);
+            }
+            length = keep;
+        }
+
+        void copyFrom(Fingerprint other) {
+            System.arraycopy(other.bytes, 0, bytes, 0, other.length);
+            length = other.length;
+        }
+
+        void writeTo(ByteBuffer bb) {
+            bb.putInt(length);
+            bb.put(bytes);
+        }
+
+        /**
+         * @return false if the buffer has no valid fingerprint
+         */
+        boolean readFrom(ByteBuffer bb) {
+            int len = bb.getInt();
+            if (len < 0 || len > SIZE) {
+                return false;
+            }
+            bb.get(bytes);
+            length = len;
+            return true;
+        }
+
+        /**
+         * Compares with the head of the buffer.
+         */
+        boolean matches(ByteBuffer bb) {
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != bb.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     static abstract class ReadingPos {
 
         static final ReadingPos EMPTY = new ReadingPos(){};
@@ -259,13 +422,30 @@ public class TailFile implements Runnable {
             return sc.position();
         }
 
-        void currentPos(long newPosition) throws IOException {}
+        void currentPos(long newPosition, Fingerprint fingerprint, Fingerprint headPrint) throws IOException {}
+
+        /**
+         * Reads the fingerprints stored with the position.
+         * @return false if no fingerprint is stored
+         */
+        boolean fingerprint(Fingerprint dest, Fingerprint headDest) throws IOException {
+            return false;
+        }
 
         void open() throws IOException {}
 
         void close() throws IOException {}
 
+        /**
+         * The position file holds the position (8 bytes), then the fingerprint of the bytes before it
+         * and the fingerprint of the head, each as a length (4 bytes, -1 if unknown) and
+         * {@link Fingerprint#SIZE} bytes.
+         */
         static class ReadingPosFile extends ReadingPos {
+            static final int LEGACY_FILE_SIZE = 8;
+            // position and one fingerprint, without the head.
+            static final int LEGACY_FINGERPRINT_FILE_SIZE = 8 + 4 + Fingerprint.SIZE;
+            static final int FILE_SIZE = 8 + (4 + Fingerprint.SIZE) * 2;
             private final Path positionFile;
             private final boolean reset;
             private FileChannel positionFileChannel;
@@ -292,21 +472,44 @@ public class TailFile implements Runnable {
             }
 
             @Override
-            void currentPos(long newPosition) throws IOException {
+            void currentPos(long newPosition, Fingerprint fingerprint, Fingerprint headPrint) throws IOException {
                 if (positionFileChannel != null && positionFileChannel.isOpen()) {
-                    ByteBuffer bb = ByteBuffer.allocate(8);
-                    bb.putLong(newPosition).flip();
+                    ByteBuffer bb = ByteBuffer.allocate(FILE_SIZE);
+                    bb.putLong(newPosition);
+                    fingerprint.writeTo(bb);
+                    headPrint.writeTo(bb);
+                    bb.flip();
                     positionFileChannel.position(0).write(bb);
                 }
             }
 
+            @Override
+            boolean fingerprint(Fingerprint dest, Fingerprint headDest) throws IOException {
+                if (positionFileChannel != null && positionFileChannel.isOpen()) {
+                    ByteBuffer bb = ByteBuffer.allocate(FILE_SIZE - 8);
+                    positionFileChannel.position(8).read(bb);
+                    bb.flip();
+                    return bb.remaining() == FILE_SIZE - 8 && dest.readFrom(bb) && headDest.readFrom(bb);
+                }
+                return false;
+            }
+
             void open() throws IOException {
-                if (reset || !Files.exists(positionFile) || Files.size(positionFile) != 8) {
-                    Files.write(positionFile, new byte[8], CREATE, WRITE, TRUNCATE_EXISTING);
+                if (reset || !Files.exists(positionFile)) {
+                    Files.write(positionFile, new byte[FILE_SIZE], CREATE, WRITE, TRUNCATE_EXISTING);
+                } else if (Files.size(positionFile) == LEGACY_FILE_SIZE
+                        || Files.size(positionFile) == LEGACY_FINGERPRINT_FILE_SIZE) {
+                    // keep the position, without fingerprints.
+                    ByteBuffer bb = ByteBuffer.allocate(FILE_SIZE);
+                    bb.put(Files.readAllBytes(positionFile), 0, 8).putInt(-1);
+                    bb.putInt(8 + 4 + Fingerprint.SIZE, -1);
+                    Files.write(positionFile, bb.array(), WRITE, TRUNCATE_EXISTING);
+                } else if (Files.size(positionFile) != FILE_SIZE) {
+                    Files.write(positionFile, new byte[FILE_SIZE], CREATE, WRITE, TRUNCATE_EXISTING);
                 }
                 this.positionFileChannel = (FileChannel) Files.newByteChannel(
                         positionFile, EnumSet.of(READ, WRITE, DSYNC));
-                this.positionFileLock = this.positionFileChannel.tryLock(0, 8, false);
+                this.positionFileLock = this.positionFileChannel.tryLock(0, FILE_SIZE, false);
                 if (this.positionFileLock == null) {
                     throw new IOException(
                             String.format("another program holds an overlapping lock.[%s]", positionFile));
@@ -2,6 +2,9 @@ package tail4j;
 
 import java.io.IOException;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -14,6 +17,8 @@ public class WatchDir extends Thread {
     private final AtomicBoolean shutdown = new AtomicBoolean(false);
     private final AtomicReference<TailFile.Thread> currentTailThread = new AtomicReference<>();
     private final AtomicReference<Throwable> childThreadError = new AtomicReference<>();
+    // the current and the rotated tail threads. only accessed by this thread.
+    private final List<TailFile.Thread> tailThreads = new ArrayList<>();
     public static final long DEFAULT_ROTATE_WAIT = 5L;
     private final long rotateWait;
     public WatchDir(TailFile.Builder builder, long rotateWait) {
@@ -53,12 +58,12 @@ public class WatchDir extends Thread {
     @Override
     public void run() {
         addShutdownHook();
-        TailFile.Thread current = tailFileBuilder.build();
-        current.setUncaughtExceptionHandler(new ExHandler(this));
-        currentTailThread.set(current);
-        current.start();
+        // start reading right away; the watch service is registered while the initial read runs.
+        TailFile.Thread current = startTailThread(tailFileBuilder.build());
         try (WatchService ws = FileSystems.getDefault().newWatchService()) {
             tailFileBuilder.parentDir().register(ws, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY, OVERFLOW);
+            // catch up on anything appended before the registration took effect.
+            current.get().handleModifyEvent(null);
             while (!shutdown.get() && !isInterrupted()) {
                 WatchKey key = ws.take();
                 handleWatchEvents(key);
@@ -76,10 +81,44 @@ public class WatchDir extends Thread {
         } catch (InterruptedException e) {
             interrupt();
         } finally {
-            if (currentTailThread.get() != null) {
-                currentTailThread.get().get().shutdown();
+            shutdownTailThreads();
+        }
+    }
+
+    private TailFile.Thread startTailThread(TailFile.Thread t) {
+        for (Iterator<TailFile.Thread> it = tailThreads.iterator(); it.hasNext(); ) {
+            if (!it.next().isAlive()) {
+                it.remove();
             }
         }
+        t.setUncaughtExceptionHandler(new ExHandler(this));
+        t.start();
+        tailThreads.add(t);
+        currentTailThread.set(t);
+        return t;
+    }
+
+    /**
+     * Shuts down every tail thread, including rotated ones waiting for shutdownLater,
+     * and waits until they have written their last output.
+     */
+    private void shutdownTailThreads() {
+        boolean interrupted = Thread.interrupted();
+        for (TailFile.Thread t : tailThreads) {
+            t.get().shutdown();
+        }
+        for (TailFile.Thread t : tailThreads) {
+            while (t.isAlive()) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            interrupt();
+        }
     }
 
     private void handleWatchEvents(WatchKey key)
@@ -95,19 +134,13 @@ public class WatchDir extends Thread {
                 cur.get().handleDeleteEvent();
                 cur.get().shutdownLater(rotateWait, TimeUnit.SECONDS);
             } else if (kind.equals(ENTRY_CREATE) && tailFileSourceHolder.isTargetEvent(context)) {
-                TailFile.Thread newT = tailFileBuilder.reset(true).build();
-                newT.setUncaughtExceptionHandler(new ExHandler(this));
-                newT.start();
-                currentTailThread.set(newT);
+                startTailThread(tailFileBuilder.reset(true).build());
             } else if (kind.equals(OVERFLOW)) {
                 // Restart when an overflow occurs.
                 cur.get().handleModifyEvent(context);
                 cur.get().shutdown();
                 cur.join();
-                TailFile.Thread newT = tailFileBuilder.reset(true).build();
-                newT.setUncaughtExceptionHandler(new ExHandler(this));
-                newT.start();
-                currentTailThread.set(newT);
+                startTailThread(tailFileBuilder.reset(true).build());
             }
         }
     }
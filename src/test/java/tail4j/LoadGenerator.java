@@ -0,0 +1,228 @@
+package tail4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Appends lines to log files at a fixed rate and rotates them like logrotate.
+ * <p>
+ * Every line is {@code "w<writer> <seq> <System.nanoTime()> <padding>\n"} so that {@link OutputChecker}
+ * can verify the output and measure the latency.
+ */
+public class LoadGenerator {
+    static final Charset ASCII = Charset.forName("US-ASCII");
+
+    public enum Rotation {
+        /** no rotation */
+        NONE,
+        /** rename the file to FILE.1 and create a new one */
+        RENAME,
+        /** copy the file to FILE.1 and truncate it */
+        COPYTRUNCATE,
+        /** copytruncate, then write past the old size at once before tail4j reads the file again */
+        COPYTRUNCATE_REGROW,
+        /** delete the file and create a new one */
+        DELETE
+    }
+
+    private final List<Writer> writers = new ArrayList<>();
+    private final AtomicBoolean shutdown = new AtomicBoolean(false);
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    /**
+     * @param files          a file per writer thread
+     * @param rotations      rotation of the writer i is {@code rotations[i % rotations.length]}
+     * @param lineSize       bytes per line including the line feed
+     * @param linesPerSecond lines per second per writer
+     * @param rotateInterval interval between rotations
+     * @param checker        used by COPYTRUNCATE(_REGROW) to wait until written lines have been tailed
+     */
+    public LoadGenerator(List<Path> files, Rotation[] rotations, int lineSize, int linesPerSecond,
+                         long rotateInterval, TimeUnit timeUnit, OutputChecker checker) {
+        if (rotations.length == 0) {
+            throw new IllegalArgumentException("rotations must not be empty.");
+        }
+        for (int i = 0; i < files.size(); i++) {
+            writers.add(new Writer(i, files.get(i), rotations[i % rotations.length], lineSize,
+                    TimeUnit.SECONDS.toNanos(1L) / linesPerSecond, timeUnit.toNanos(rotateInterval), checker));
+        }
+    }
+
+    public void start() {
+        for (Writer w : writers) {
+            w.start();
+        }
+    }
+
+    /**
+     * Stops the writers and returns the number of lines written by each of them.
+     */
+    public long[] stop() throws InterruptedException {
+        shutdown.set(true);
+        long[] written = new long[writers.size()];
+        for (Writer w : writers) {
+            w.join();
+            written[w.index] = w.seq;
+        }
+        Throwable t;
+        if ((t = error.get()) != null) {
+            throw new IllegalStateException(t);
+        }
+        return written;
+    }
+
+    public long rotations() {
+        long n = 0L;
+        for (Writer w : writers) {
+            n += w.rotated;
+        }
+        return n;
+    }
+
+    class Writer extends Thread {
+        private final int index;
+        private final Path file;
+        private final Path rotated1;
+        private final Rotation rotation;
+        private final int lineSize;
+        private final long intervalNanos;
+        private final long rotateNanos;
+        private final OutputChecker checker;
+        private final byte[] padding;
+        private volatile long seq;
+        private volatile long rotated;
+
+        Writer(int index, Path file, Rotation rotation, int lineSize, long intervalNanos, long rotateNanos,
+               OutputChecker checker) {
+            super("load-writer-" + index);
+            this.index = index;
+            this.file = file;
+            this.rotated1 = file.resolveSibling(file.getFileName() + ".1");
+            this.rotation = rotation;
+            this.lineSize = lineSize;
+            this.intervalNanos = intervalNanos;
+            this.rotateNanos = rotateNanos;
+            this.checker = checker;
+            this.padding = new byte[lineSize];
+            Arrays.fill(padding, (byte) 'x');
+        }
+
+        @Override
+        public void run() {
+            FileChannel ch = null;
+            try {
+                ch = open();
+                long next = System.nanoTime();
+                long nextRotation = next + rotateNanos;
+                while (!shutdown.get()) {
+                    long now;
+                    while ((now = System.nanoTime()) < next) {
+                        LockSupport.parkNanos(next - now);
+                    }
+                    next += intervalNanos;
+                    writeLine(ch);
+                    if (rotation != Rotation.NONE && now >= nextRotation) {
+                        ch = rotate(ch);
+                        nextRotation = System.nanoTime() + rotateNanos;
+                    }
+                }
+            } catch (Throwable t) {
+                error.compareAndSet(null, t);
+            } finally {
+                if (ch != null) {
+                    try {
+                        ch.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+
+        private FileChannel open() throws IOException {
+            return FileChannel.open(file, CREATE, WRITE, APPEND);
+        }
+
+        private ByteBuffer line(long lineSeq) {
+            String header = String.format("w%d %d %d ", index, lineSeq, System.nanoTime());
+            ByteBuffer bb = ByteBuffer.allocate(Math.max(lineSize, header.length() + 1));
+            bb.put(header.getBytes(ASCII));
+            bb.put(padding, 0, bb.remaining() - 1);
+            bb.put((byte) '\n');
+            bb.flip();
+            return bb;
+        }
+
+        private void writeLine(FileChannel ch) throws IOException {
+            ByteBuffer bb = line(seq);
+            while (bb.hasRemaining()) {
+                ch.write(bb);
+            }
+            seq++;
+        }
+
+        private void awaitTailed() throws InterruptedException {
+            if (!checker.awaitReceived(index, seq, 10L, TimeUnit.SECONDS)) {
+                throw new IllegalStateException(
+                        String.format("writer[%d] timed out waiting for line %d.", index, seq - 1));
+            }
+        }
+
+        private FileChannel rotate(FileChannel ch) throws IOException, InterruptedException {
+            rotated++;
+            switch (rotation) {
+                case RENAME:
+                    ch.close();
+                    Files.move(file, rotated1, StandardCopyOption.REPLACE_EXISTING);
+                    return open();
+                case DELETE:
+                    ch.close();
+                    Files.delete(file);
+                    return open();
+                case COPYTRUNCATE:
+                    // lines written between the copy and the truncate are lost with a real copytruncate,
+                    // so wait until tail4j has emitted them. this tests the reading after the truncate.
+                    awaitTailed();
+                    Files.copy(file, rotated1, StandardCopyOption.REPLACE_EXISTING);
+                    ch.truncate(0L);
+                    return ch;
+                case COPYTRUNCATE_REGROW:
+                    awaitTailed();
+                    long size = ch.size();
+                    Files.copy(file, rotated1, StandardCopyOption.REPLACE_EXISTING);
+                    // lines past the old size in a single write right after the truncate, so that tail4j
+                    // finds the file longer than its position rather than shorter.
+                    List<ByteBuffer> burst = new ArrayList<>();
+                    long burstSize = 0L;
+                    while (burstSize <= size) {
+                        ByteBuffer bb = line(seq + burst.size());
+                        burstSize += bb.remaining();
+                        burst.add(bb);
+                    }
+                    ByteBuffer[] bbs = burst.toArray(new ByteBuffer[burst.size()]);
+                    ch.truncate(0L);
+                    while (bbs[bbs.length - 1].hasRemaining()) {
+                        ch.write(bbs);
+                    }
+                    seq += bbs.length;
+                    return ch;
+                default:
+                    return ch;
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package tail4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reads the lines written by {@link LoadGenerator} from the output of tail4j and checks that every line
+ * of every writer arrives once, unbroken and in order. Also records the latency from the write to the read.
+ */
+public class OutputChecker extends Thread {
+    private final ReadableByteChannel in;
+    private final int writers;
+    // the number of lines received in sequence from the head, per writer.
+    private final AtomicLongArray received;
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    private final BitSet[] seen;
+    private final long[] maxSeq;
+    private long[] latencies = new long[1024];
+    private long lines;
+    private long bytes;
+    private long duplicates;
+    private long outOfOrder;
+    private long broken;
+    private long firstNanos;
+    private long lastNanos;
+
+    public OutputChecker(ReadableByteChannel in, int writers) {
+        super("output-checker");
+        this.in = in;
+        this.writers = writers;
+        this.received = new AtomicLongArray(writers);
+        this.seen = new BitSet[writers];
+        this.maxSeq = new long[writers];
+        for (int i = 0; i < writers; i++) {
+            seen[i] = new BitSet();
+            maxSeq[i] = -1L;
+        }
+    }
+
+    /**
+     * Waits until the lines from 0 to {@code count - 1} of the writer have been received.
+     */
+    public boolean awaitReceived(int writer, long count, long timeout, TimeUnit timeUnit)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        while (received.get(writer) < count) {
+            if (System.nanoTime() > deadline || !isAlive()) {
+                return false;
+            }
+            Thread.sleep(1L);
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        ByteBuffer bb = ByteBuffer.allocate(1024 * 1024);
+        byte[] line = new byte[1024];
+        int lineLen = 0;
+        try {
+            while (in.read(bb) != -1) {
+                long now = System.nanoTime();
+                bb.flip();
+                while (bb.hasRemaining()) {
+                    byte b = bb.get();
+                    if (b == '\n') {
+                        check(new String(line, 0, lineLen, LoadGenerator.ASCII), now);
+                        lineLen = 0;
+                    } else {
+                        if (lineLen == line.length) {
+                            line = Arrays.copyOf(line, line.length * 2);
+                        }
+                        line[lineLen++] = b;
+                    }
+                }
+                bb.clear();
+            }
+            if (lineLen > 0) {
+                broken++;
+            }
+        } catch (Throwable t) {
+            error.set(t);
+        }
+    }
+
+    private void check(String line, long now) {
+        lines++;
+        bytes += line.length() + 1;
+        String[] cols = line.split(" ", 4);
+        int writer;
+        long seq;
+        long nanos;
+        try {
+            if (cols.length != 4 || cols[0].charAt(0) != 'w') {
+                broken++;
+                return;
+            }
+            writer = Integer.parseInt(cols[0].substring(1));
+            seq = Long.parseLong(cols[1]);
+            nanos = Long.parseLong(cols[2]);
+        } catch (NumberFormatException e) {
+            broken++;
+            return;
+        }
+        if (writer < 0 || writer >= writers || cols[3].indexOf('w') >= 0) {
+            broken++;
+            return;
+        }
+        if (lines == 1L) {
+            firstNanos = now;
+        }
+        lastNanos = now;
+        if (lines > latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencies.length * 2);
+        }
+        latencies[(int) lines - 1] = now - nanos;
+        if (seen[writer].get((int) seq)) {
+            duplicates++;
+            return;
+        }
+        seen[writer].set((int) seq);
+        if (seq < maxSeq[writer]) {
+            outOfOrder++;
+        } else {
+            maxSeq[writer] = seq;
+        }
+        received.set(writer, seen[writer].nextClearBit((int) received.get(writer)));
+    }
+
+    /**
+     * Call after this thread has finished.
+     */
+    public Result result(long[] written) {
+        long missing = 0L;
+        for (int i = 0; i < writers; i++) {
+            missing += written[i] - seen[i].get(0, (int) written[i]).cardinality();
+        }
+        long[] sorted = Arrays.copyOf(latencies, (int) lines);
+        Arrays.sort(sorted);
+        return new Result(lines, bytes, missing, duplicates, outOfOrder, broken, sorted,
+                lastNanos - firstNanos, error.get());
+    }
+
+    public static class Result {
+        final long lines;
+        final long bytes;
+        final long missing;
+        final long duplicates;
+        final long outOfOrder;
+        final long broken;
+        final long elapsedNanos;
+        final Throwable error;
+        private final long[] sortedLatencies;
+
+        Result(long lines, long bytes, long missing, long duplicates, long outOfOrder, long broken,
+               long[] sortedLatencies, long elapsedNanos, Throwable error) {
+            this.lines = lines;
+            this.bytes = bytes;
+            this.missing = missing;
+            this.duplicates = duplicates;
+            this.outOfOrder = outOfOrder;
+            this.broken = broken;
+            this.sortedLatencies = sortedLatencies;
+            this.elapsedNanos = elapsedNanos;
+            this.error = error;
+        }
+
+        /**
+         * @param p 0.0 - 1.0
+         */
+        long latencyNanos(double p) {
+            if (sortedLatencies.length == 0) {
+                return 0L;
+            }
+            int i = (int) Math.ceil(p * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(i, sortedLatencies.length - 1))];
+        }
+
+        double linesPerSecond() {
+            return elapsedNanos == 0L ? 0.0 : lines * 1e9 / elapsedNanos;
+        }
+
+        double megaBytesPerSecond() {
+            return elapsedNanos == 0L ? 0.0 : bytes * 1e9 / elapsedNanos / (1024 * 1024);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package tail4j;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.*;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+public class OutputMultiplexerTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private FileChannel newChannel(Path path) throws Exception {
+        return FileChannel.open(path, WRITE, TRUNCATE_EXISTING);
+    }
+
+    @Test
+    public void testWriteCompleteLines() throws Exception {
+        Path dest = tempDir.newFile().toPath();
+        try (OutputMultiplexer out = new OutputMultiplexer(newChannel(dest))) {
+            out.write("One\nTwo\n".getBytes(UTF8));
+        }
+        assertThat(new String(Files.readAllBytes(dest), UTF8), is("One\nTwo\n"));
+    }
+
+    @Test
+    public void testHoldPendingLineUntilTerminated() throws Exception {
+        Path dest = tempDir.newFile().toPath();
+        try (OutputMultiplexer out = new OutputMultiplexer(newChannel(dest))) {
+            out.write("On".getBytes(UTF8));
+            out.write("e\nTw".getBytes(UTF8));
+            Thread.sleep(100L);
+            assertThat(new String(Files.readAllBytes(dest), UTF8), is("One\n"));
+            out.write("o\n".getBytes(UTF8));
+        }
+        assertThat(new String(Files.readAllBytes(dest), UTF8), is("One\nTwo\n"));
+    }
+
+    @Test
+    public void testFlushPendingLine() throws Exception {
+        Path dest = tempDir.newFile().toPath();
+        try (OutputMultiplexer out = new OutputMultiplexer(newChannel(dest))) {
+            out.write("Hello".getBytes(UTF8));
+            out.flush();
+            Thread.sleep(100L);
+            assertThat(new String(Files.readAllBytes(dest), UTF8), is("Hello"));
+        }
+    }
+
+    @Test
+    public void testLinesFromThreadsDoNotInterleave() throws Exception {
+        Path dest = tempDir.newFile().toPath();
+        final int threads = 4;
+        final int lines = 2000;
+        // small batches and a small pending limit to exercise back pressure.
+        try (final OutputMultiplexer out = new OutputMultiplexer(newChannel(dest), 3, 4096)) {
+            List<Thread> writers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final String name = "t" + i;
+                Thread t = new Thread() {
+                    public void run() {
+                        try {
+                            for (int n = 0; n < lines; n++) {
+                                // write every line in two pieces.
+                                out.write((name + ":" + n).getBytes(UTF8));
+                                out.write((":" + name + "\n").getBytes(UTF8));
+                            }
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                };
+                writers.add(t);
+                t.start();
+            }
+            for (Thread t : writers) {
+                t.join();
+            }
+        }
+        int[] next = new int[threads];
+        for (String line : Files.readAllLines(dest, UTF8)) {
+            String[] cols = line.split(":");
+            assertThat(line, cols.length, is(3));
+            assertThat(line, cols[2], is(cols[0]));
+            int i = Integer.parseInt(cols[0].substring(1));
+            assertThat(line, Integer.parseInt(cols[1]), is(next[i]++));
+        }
+        for (int i = 0; i < threads; i++) {
+            assertThat(next[i], is(lines));
+        }
+    }
+
+    @Test
+    public void testPartialLineOfTailFileDoesNotInterleave() throws Exception {
+        Path dest = tempDir.newFile().toPath();
+        Path a = tempDir.newFile().toPath();
+        Path b = tempDir.newFile().toPath();
+        try (OutputMultiplexer out = new OutputMultiplexer(newChannel(dest))) {
+            TailFile.Thread ta = new TailFile.Builder(a, out).build();
+            TailFile.Thread tb = new TailFile.Builder(b, out).build();
+            ta.start();
+            tb.start();
+            Files.write(a, "abc".getBytes(UTF8), APPEND);
+            ta.get().handleModifyEvent(a.getFileName());
+            Thread.sleep(100L);
+            Files.write(b, "xyz\n".getBytes(UTF8), APPEND);
+            tb.get().handleModifyEvent(b.getFileName());
+            Thread.sleep(100L);
+            Files.write(a, "def\n".getBytes(UTF8), APPEND);
+            ta.get().handleModifyEvent(a.getFileName());
+            Thread.sleep(100L);
+            assertThat(new String(Files.readAllBytes(dest), UTF8), is("xyz\nabcdef\n"));
+            ta.get().shutdown();
+            tb.get().shutdown();
+            ta.join();
+            tb.join();
+        }
+    }
+
+    @Test
+    public void testCloseWritesEveryAcceptedLine() throws Exception {
+        Path dest = tempDir.newFile().toPath();
+        final OutputMultiplexer out = new OutputMultiplexer(newChannel(dest), 2, 1024);
+        final int threads = 4;
+        final long[] accepted = new long[threads];
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            Thread t = new Thread() {
+                public void run() {
+                    try {
+                        while (true) {
+                            out.write(("t" + index + ":" + accepted[index] + "\n").getBytes(UTF8));
+                            accepted[index]++;
+                        }
+                    } catch (java.io.IOException e) {
+                        // closed
+                    }
+                }
+            };
+            writers.add(t);
+            t.start();
+        }
+        Thread.sleep(100L);
+        out.close();
+        for (Thread t : writers) {
+            t.join();
+        }
+        int[] lines = new int[threads];
+        for (String line : Files.readAllLines(dest, UTF8)) {
+            lines[Integer.parseInt(line.substring(1, line.indexOf(':')))]++;
+        }
+        for (int i = 0; i < threads; i++) {
+            assertThat(lines[i], is((int) accepted[i]));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxPendingBytes() throws Exception {
+        new OutputMultiplexer(newChannel(tempDir.newFile().toPath()), 1, 0L);
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void testWriteAfterClose() throws Exception {
+        OutputMultiplexer out = new OutputMultiplexer(newChannel(tempDir.newFile().toPath()));
+        out.close();
+        out.write("One\n".getBytes(UTF8));
+    }
+}
@@ -0,0 +1,163 @@
+package tail4j;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Soak test of WatchDir under appending writers and log rotation.
+ * This is excluded from the default build. Run with:
+ * <pre>
+ * $ mvn test -Psoak -Dsoak.writers=8 -Dsoak.duration=60
+ * </pre>
+ * See the soak profile in pom.xml for the other properties.
+ */
+public class SoakTest {
+
+    @Rule
+    public TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static String property(String name, String defaultValue) {
+        String value = System.getProperty(name);
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    private static LoadGenerator.Rotation[] rotations(String names) {
+        String[] split = names.split(",");
+        LoadGenerator.Rotation[] rotations = new LoadGenerator.Rotation[split.length];
+        for (int i = 0; i < split.length; i++) {
+            rotations[i] = LoadGenerator.Rotation.valueOf(split[i].trim().toUpperCase());
+        }
+        return rotations;
+    }
+
+    static class ResourceSampler extends Thread {
+        private final AtomicBoolean shutdown = new AtomicBoolean(false);
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private volatile long maxHeapUsed;
+        private volatile int maxThreads;
+
+        ResourceSampler() {
+            super("resource-sampler");
+            setDaemon(true);
+            threads.resetPeakThreadCount();
+        }
+
+        @Override
+        public void run() {
+            while (!shutdown.get()) {
+                maxHeapUsed = Math.max(maxHeapUsed, memory.getHeapMemoryUsage().getUsed());
+                maxThreads = Math.max(maxThreads, threads.getThreadCount());
+                try {
+                    sleep(100L);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+
+        void shutdown() throws InterruptedException {
+            shutdown.set(true);
+            interrupt();
+            join();
+        }
+    }
+
+    @Test
+    public void testSoak() throws Exception {
+        int writers = Integer.parseInt(property("soak.writers", "4"));
+        int lineSize = Integer.parseInt(property("soak.lineSize", "200"));
+        int rate = Integer.parseInt(property("soak.rate", "500"));
+        long duration = Long.parseLong(property("soak.duration", "30"));
+        long rotateInterval = Long.parseLong(property("soak.rotateInterval", "5"));
+        LoadGenerator.Rotation[] rotations = rotations(property("soak.rotation", "rename,copytruncate,copytruncate_regrow,delete"));
+        long maxP99Millis = Long.parseLong(property("soak.maxP99Millis", "1000"));
+        double minLinesPerSecond = Double.parseDouble(property("soak.minLinesPerSecond", "0"));
+
+        Pipe pipe = Pipe.open();
+        OutputChecker checker = new OutputChecker(pipe.source(), writers);
+        checker.start();
+        ResourceSampler sampler = new ResourceSampler();
+        sampler.start();
+        final AtomicReference<Throwable> watchError = new AtomicReference<>();
+        Thread.UncaughtExceptionHandler handler = new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                watchError.compareAndSet(null, e);
+            }
+        };
+        List<Path> files = new ArrayList<>();
+        List<WatchDir> watchDirs = new ArrayList<>();
+        long[] written;
+        LoadGenerator generator;
+        try (OutputMultiplexer out = new OutputMultiplexer(pipe.sink())) {
+            for (int i = 0; i < writers; i++) {
+                Path file = tempDir.newFolder("w" + i).toPath().resolve("app.log");
+                Files.createFile(file);
+                files.add(file);
+                WatchDir wd = new WatchDir(new TailFile.Builder(file, out), 1L);
+                wd.setUncaughtExceptionHandler(handler);
+                wd.start();
+                watchDirs.add(wd);
+            }
+            generator = new LoadGenerator(files, rotations, lineSize, rate,
+                    rotateInterval, TimeUnit.SECONDS, checker);
+            generator.start();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(duration));
+            written = generator.stop();
+            for (int i = 0; i < writers; i++) {
+                checker.awaitReceived(i, written[i], 30L, TimeUnit.SECONDS);
+            }
+            for (WatchDir wd : watchDirs) {
+                wd.shutdown();
+                wd.join();
+            }
+        }
+        checker.join();
+        sampler.shutdown();
+        OutputChecker.Result r = checker.result(written);
+
+        long total = 0L;
+        for (long w : written) {
+            total += w;
+        }
+        System.out.println(String.format("soak: writers=%d lineSize=%d rate=%d/s duration=%ds rotations=%d",
+                writers, lineSize, rate, duration, generator.rotations()));
+        System.out.println(String.format("soak: written=%d received=%d missing=%d duplicates=%d " +
+                "outOfOrder=%d broken=%d", total, r.lines, r.missing, r.duplicates, r.outOfOrder, r.broken));
+        System.out.println(String.format("soak: throughput=%.0f lines/s %.2f MiB/s",
+                r.linesPerSecond(), r.megaBytesPerSecond()));
+        System.out.println(String.format("soak: latency p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+                r.latencyNanos(0.5) / 1e6, r.latencyNanos(0.9) / 1e6, r.latencyNanos(0.99) / 1e6,
+                r.latencyNanos(0.999) / 1e6, r.latencyNanos(1.0) / 1e6));
+        System.out.println(String.format("soak: maxHeapUsed=%.1fMiB maxThreads=%d",
+                sampler.maxHeapUsed / (1024.0 * 1024.0), sampler.maxThreads));
+
+        assertThat(watchError.get(), is(nullValue()));
+        assertThat(r.error, is(nullValue()));
+        assertThat("missing lines", r.missing, is(0L));
+        assertThat("duplicate lines", r.duplicates, is(0L));
+        assertThat("broken lines", r.broken, is(0L));
+        assertThat("lines out of order", r.outOfOrder, is(0L));
+        assertTrue(String.format("p99 latency exceeds %dms", maxP99Millis),
+                r.latencyNanos(0.99) <= TimeUnit.MILLISECONDS.toNanos(maxP99Millis));
+        assertTrue(String.format("throughput is lower than %.0f lines/s", minLinesPerSecond),
+                r.linesPerSecond() >= minLinesPerSecond);
+    }
+}
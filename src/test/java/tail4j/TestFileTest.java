@@ -157,6 +157,180 @@ public class TestFileTest {
         t.join();
     }
 
+    @Test
+    public void testTruncateAndAppend() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TailFile.SourceHolder sourceHolder = new TailFile.SourceHolder(tempDir.newFile().toPath());
+        TailFile.Thread t = new TailFile.Builder(sourceHolder.getSource(), out).build();
+        t.start();
+        String one = "One One One";
+        Files.write(sourceHolder.getSource(), one.getBytes(Charset.defaultCharset()), StandardOpenOption.APPEND);
+        t.get().handleModifyEvent(sourceHolder.getSource().getFileName());
+        Thread.sleep(100L);
+        assertThat(new String(out.toByteArray(), Charset.defaultCharset()), is(one));
+        // copytruncate, then append less than the last position before tail4j reads
+        String two = "Two";
+        Files.write(sourceHolder.getSource(), two.getBytes(Charset.defaultCharset()),
+                StandardOpenOption.TRUNCATE_EXISTING);
+        t.get().handleModifyEvent(sourceHolder.getSource().getFileName());
+        Thread.sleep(100L);
+        assertThat(new String(out.toByteArray(), Charset.defaultCharset()), is(one + two));
+        t.get().shutdown();
+        t.join();
+    }
+
+    @Test
+    public void testTruncateAndGrowPastLastPosition() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TailFile.SourceHolder sourceHolder = new TailFile.SourceHolder(tempDir.newFile().toPath());
+        TailFile.Thread t = new TailFile.Builder(sourceHolder.getSource(), out).build();
+        t.start();
+        String one = "One";
+        Files.write(sourceHolder.getSource(), one.getBytes(Charset.defaultCharset()), StandardOpenOption.APPEND);
+        t.get().handleModifyEvent(sourceHolder.getSource().getFileName());
+        Thread.sleep(100L);
+        assertThat(new String(out.toByteArray(), Charset.defaultCharset()), is(one));
+        // copytruncate, then append more than the last position before tail4j reads
+        String two = "Two Two Two";
+        Files.write(sourceHolder.getSource(), two.getBytes(Charset.defaultCharset()),
+                StandardOpenOption.TRUNCATE_EXISTING);
+        t.get().handleModifyEvent(sourceHolder.getSource().getFileName());
+        Thread.sleep(100L);
+        assertThat(new String(out.toByteArray(), Charset.defaultCharset()), is(one + two));
+        t.get().shutdown();
+        t.join();
+    }
+
+    @Test
+    public void testRestartAfterTruncate() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TailFile.SourceHolder sourceHolder = new TailFile.SourceHolder(tempDir.newFile().toPath());
+        Path posFile = tempDir.newFile().toPath();
+        TailFile.Thread t = new TailFile.Builder(sourceHolder.getSource(), out).positionFile(posFile).build();
+        t.start();
+        String one = "One One One";
+        Files.write(sourceHolder.getSource(), one.getBytes(Charset.defaultCharset()), StandardOpenOption.APPEND);
+        t.get().handleModifyEvent(sourceHolder.getSource().getFileName());
+        Thread.sleep(100L);
+        t.get().shutdown();
+        t.join();
+        String two = "Two";
+        Files.write(sourceHolder.getSource(), two.getBytes(Charset.defaultCharset()),
+                StandardOpenOption.TRUNCATE_EXISTING);
+        out = new ByteArrayOutputStream();
+        t = new TailFile.Builder(sourceHolder.getSource(), out).positionFile(posFile).build();
+        t.start();
+        Thread.sleep(100L);
+        assertThat(new String(out.toByteArray(), Charset.defaultCharset()), is(two));
+        t.get().shutdown();
+        t.join();
+    }
+
+    @Test
+    public void testRestartAfterTruncateAndGrowPastLastPosition() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TailFile.SourceHolder sourceHolder = new TailFile.SourceHolder(tempDir.newFile().toPath());
+        Path posFile = tempDir.newFile().toPath();
+        TailFile.Thread t = new TailFile.Builder(sourceHolder.getSource(), out).positionFile(posFile).build();
+        t.start();
+        String one = "One";
+        Files.write(sourceHolder.getSource(), one.getBytes(Charset.defaultCharset()), StandardOpenOption.APPEND);
+        t.get().handleModifyEvent(sourceHolder.getSource().getFileName());
+        Thread.sleep(100L);
+        t.get().shutdown();
+        t.join();
+        String two = "Two Two Two";
+        Files.write(sourceHolder.getSource(), two.getBytes(Charset.defaultCharset()),
+                StandardOpenOption.TRUNCATE_EXISTING);
+        out = new ByteArrayOutputStream();
+        t = new TailFile.Builder(sourceHolder.getSource(), out).positionFile(posFile).build();
+        t.start();
+        Thread.sleep(100L);
+        assertThat(new String(out.toByteArray(), Charset.defaultCharset()), is(two));
+        t.get().shutdown();
+        t.join();
+    }
+
+    /**
+     * Lines of 100 bytes which differ only at the head, so the bytes before a line end are the same
+     * in every line.
+     */
+    private static String fixedWidthLines(String prefix, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            StringBuilder line = new StringBuilder(prefix + " " + i);
+            while (line.length() < 99) {
+                line.append('x');
+            }
+            sb.append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testTruncateAndGrowPastLastPositionWithFixedWidthLines() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TailFile.SourceHolder sourceHolder = new TailFile.SourceHolder(tempDir.newFile().toPath());
+        TailFile.Thread t = new TailFile.Builder(sourceHolder.getSource(), out).build();
+        t.start();
+        String one = fixedWidthLines("old", 10);
+        Files.write(sourceHolder.getSource(), one.getBytes(Charset.defaultCharset()), StandardOpenOption.APPEND);
+        t.get().handleModifyEvent(sourceHolder.getSource().getFileName());
+        Thread.sleep(100L);
+        assertThat(new String(out.toByteArray(), Charset.defaultCharset()), is(one));
+        // the bytes before the last position are the same in the new file
+        String two = fixedWidthLines("new", 15);
+        Files.write(sourceHolder.getSource(), two.getBytes(Charset.defaultCharset()),
+                StandardOpenOption.TRUNCATE_EXISTING);
+        t.get().handleModifyEvent(sourceHolder.getSource().getFileName());
+        Thread.sleep(100L);
+        assertThat(new String(out.toByteArray(), Charset.defaultCharset()), is(one + two));
+        t.get().shutdown();
+        t.join();
+    }
+
+    @Test
+    public void testRestartAfterTruncateAndGrowPastLastPositionWithFixedWidthLines() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TailFile.SourceHolder sourceHolder = new TailFile.SourceHolder(tempDir.newFile().toPath());
+        Path posFile = tempDir.newFile().toPath();
+        TailFile.Thread t = new TailFile.Builder(sourceHolder.getSource(), out).positionFile(posFile).build();
+        t.start();
+        String one = fixedWidthLines("old", 10);
+        Files.write(sourceHolder.getSource(), one.getBytes(Charset.defaultCharset()), StandardOpenOption.APPEND);
+        t.get().handleModifyEvent(sourceHolder.getSource().getFileName());
+        Thread.sleep(100L);
+        t.get().shutdown();
+        t.join();
+        String two = fixedWidthLines("new", 15);
+        Files.write(sourceHolder.getSource(), two.getBytes(Charset.defaultCharset()),
+                StandardOpenOption.TRUNCATE_EXISTING);
+        out = new ByteArrayOutputStream();
+        t = new TailFile.Builder(sourceHolder.getSource(), out).positionFile(posFile).build();
+        t.start();
+        Thread.sleep(100L);
+        assertThat(new String(out.toByteArray(), Charset.defaultCharset()), is(two));
+        t.get().shutdown();
+        t.join();
+    }
+
+    @Test
+    public void testRestartWithLegacyPositionFile() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TailFile.SourceHolder sourceHolder = new TailFile.SourceHolder(tempDir.newFile().toPath());
+        Files.write(sourceHolder.getSource(), "OneTwo".getBytes(Charset.defaultCharset()));
+        Path posFile = tempDir.newFile().toPath();
+        // a position file without a fingerprint, at 3
+        Files.write(posFile, java.nio.ByteBuffer.allocate(8).putLong(3L).array());
+        TailFile.Thread t = new TailFile.Builder(sourceHolder.getSource(), out).positionFile(posFile).build();
+        t.start();
+        Thread.sleep(100L);
+        assertThat(new String(out.toByteArray(), Charset.defaultCharset()), is("Two"));
+        t.get().shutdown();
+        t.join();
+        assertThat(Files.size(posFile), is((long) TailFile.ReadingPos.ReadingPosFile.FILE_SIZE));
+    }
+
     @Test
     public void testRunWithJISSourceCharset() throws Exception {
         testRunWithSourceCharset(Charset.forName("ISO-2022-JP"), Charset.defaultCharset());